@@ -0,0 +1,186 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package Interpreter;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import lexer.Lexer;
+import lexer.Token;
+import lexer.TokenType;
+import merrimackutil.json.types.JSONObject;
+
+/**
+ * Measures the throughput of the whole file pipeline: reading the source
+ * through the same reader as {@code --file}, lexing it, formatting every
+ * token and writing the result out. The output is discarded so only the
+ * pipeline itself is measured.
+ */
+public class Benchmark
+{
+    private final List<Path> files; // The sources to run over.
+    private final int runs; // The number of measured passes.
+    private final PrintStream sink; // Where the formatted tokens go.
+
+    /**
+     * Constructs a new benchmark.
+     *
+     * @param files the sources to run over.
+     * @param runs  the number of measured passes over the sources.
+     */
+    public Benchmark(List<Path> files, int runs)
+    {
+        this.files = files;
+        this.runs = runs;
+        this.sink = new PrintStream(
+                new BufferedOutputStream(OutputStream.nullOutputStream()));
+    }
+
+    /**
+     * Runs one untimed warm up pass followed by the measured passes.
+     *
+     * @return the results as a single line of JSON.
+     * @throws IOException if a source can not be read.
+     */
+    public String run() throws IOException
+    {
+        long[] perFile = new long[files.size() * runs];
+        long bytes = 0;
+        long tokens = 0;
+        long gcCount;
+        long gcTime;
+        long start;
+        long elapsed;
+        int idx = 0;
+
+        for (Path file : files)
+            process(file);
+
+        gcCount = -gcCount();
+        gcTime = -gcTime();
+        start = System.nanoTime();
+        for (int i = 0; i < runs; i++)
+        {
+            for (Path file : files)
+            {
+                long t0 = System.nanoTime();
+                tokens += process(file);
+                perFile[idx++] = System.nanoTime() - t0;
+                bytes += Files.size(file);
+            }
+        }
+        elapsed = System.nanoTime() - start;
+        gcCount += gcCount();
+        gcTime += gcTime();
+
+        Arrays.sort(perFile);
+        double secs = elapsed / 1e9;
+
+        JSONObject res = new JSONObject();
+        res.put("files", files.size());
+        res.put("runs", runs);
+        res.put("bytes", bytes);
+        res.put("tokens", tokens);
+        res.put("seconds", secs);
+        res.put("mb_per_sec", bytes / (1024.0 * 1024.0) / secs);
+        res.put("tokens_per_sec", tokens / secs);
+        res.put("p50_ms", percentile(perFile, 50) / 1e6);
+        res.put("p99_ms", percentile(perFile, 99) / 1e6);
+        res.put("gc_count", gcCount);
+        res.put("gc_ms", gcTime);
+        return res.toJSON();
+    }
+
+    /**
+     * **********
+     * Private Methods **********
+     */
+    /**
+     * Pushes a single source through the pipeline.
+     *
+     * @param file the source to process.
+     * @return the number of tokens in the source.
+     * @throws IOException if the source can not be read.
+     */
+    private long process(Path file) throws IOException
+    {
+        Lexer lex = new Lexer(file.toFile());
+        long count = 0;
+
+        Token tok = lex.nextToken();
+        while (tok.getType() != TokenType.EOF)
+        {
+            sink.println(tok);
+            count++;
+            tok = lex.nextToken();
+        }
+        lex.close();
+        sink.flush();
+        return count;
+    }
+
+    /**
+     * Finds a percentile of a sorted array using the nearest rank.
+     *
+     * @param sorted the sorted samples.
+     * @param p      the percentile between 0 and 100.
+     * @return the sample at the percentile or 0 if there are no samples.
+     */
+    private static long percentile(long[] sorted, int p)
+    {
+        if (sorted.length == 0)
+            return 0;
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Get the total number of collections across all collectors.
+     *
+     * @return the number of collections so far.
+     */
+    private static long gcCount()
+    {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory
+                .getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionCount());
+        return total;
+    }
+
+    /**
+     * Get the total time spent collecting across all collectors.
+     *
+     * @return the collection time so far in milliseconds.
+     */
+    private static long gcTime()
+    {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory
+                .getGarbageCollectorMXBeans())
+            total += Math.max(0, gc.getCollectionTime());
+        return total;
+    }
+}
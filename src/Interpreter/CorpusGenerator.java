@@ -0,0 +1,189 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package Interpreter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Generates synthetic MFL sources for benchmarking. The mix of identifiers,
+ * numeric literals, operators, reserved words and comments is tunable.
+ */
+public class CorpusGenerator
+{
+    private static final int LINE_LENGTH = 72; // Wrap lines near this width.
+
+    private static final String[] OPERATORS = { "+", "-", "*", "/", "<", "<=",
+            ">", ">=", "=", "!=", ":=", "(", ")" };
+    private static final String[] KEYWORDS = { "true", "false", "mod", "not",
+            "and", "or", "val" };
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    private final Random rand; // The source of randomness.
+    private int ids = 4; // The weight of identifiers.
+    private int nums = 3; // The weight of numeric literals.
+    private int ops = 4; // The weight of operators.
+    private int kws = 2; // The weight of reserved words.
+    private int comments = 1; // The weight of comments.
+
+    /**
+     * Constructs a new generator. The same seed always produces the same
+     * corpus.
+     *
+     * @param seed the seed for the random number generator.
+     */
+    public CorpusGenerator(long seed)
+    {
+        rand = new Random(seed);
+    }
+
+    /**
+     * Sets the mix of lexemes from a specification such as
+     * {@code id=4,num=3,op=4,kw=2,comment=1}. Kinds that are not listed
+     * keep their current weight.
+     *
+     * @param spec the mix specification.
+     * @throws IllegalArgumentException if the specification is malformed.
+     */
+    public void setMix(String spec) throws IllegalArgumentException
+    {
+        for (String part : spec.split(","))
+        {
+            String[] kv = part.split("=");
+            if (kv.length != 2)
+                throw new IllegalArgumentException("bad mix entry: " + part);
+
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight < 0)
+                throw new IllegalArgumentException("negative weight: " + part);
+
+            switch (kv[0].trim())
+            {
+            case "id":
+                ids = weight;
+                break;
+            case "num":
+                nums = weight;
+                break;
+            case "op":
+                ops = weight;
+                break;
+            case "kw":
+                kws = weight;
+                break;
+            case "comment":
+                comments = weight;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown kind: " + kv[0]);
+            }
+        }
+
+        if (ids + nums + ops + kws + comments == 0)
+            throw new IllegalArgumentException("all weights are zero");
+    }
+
+    /**
+     * Generates a single source of roughly the requested size.
+     *
+     * @param size the number of characters to generate.
+     * @return the generated source.
+     */
+    public String generate(int size)
+    {
+        StringBuilder src = new StringBuilder(size + LINE_LENGTH);
+        int lineStart = 0;
+
+        while (src.length() < size)
+        {
+            src.append(nextLexeme());
+            if (src.length() - lineStart >= LINE_LENGTH)
+            {
+                src.append('\n');
+                lineStart = src.length();
+            }
+            else
+                src.append(' ');
+        }
+        return src.toString();
+    }
+
+    /**
+     * Writes a corpus of generated sources into a directory.
+     *
+     * @param dir   the directory to write to, created if needed.
+     * @param files the number of files to write.
+     * @param size  the size of each file in characters.
+     * @throws IOException if a file can not be written.
+     */
+    public void writeCorpus(Path dir, int files, int size) throws IOException
+    {
+        Files.createDirectories(dir);
+        for (int i = 0; i < files; i++)
+            Files.writeString(dir.resolve(String.format("gen-%05d.mfl", i)),
+                    generate(size));
+    }
+
+    /**
+     * **********
+     * Private Methods **********
+     */
+    /**
+     * Picks a random lexeme according to the current mix.
+     *
+     * @return the lexeme.
+     */
+    private String nextLexeme()
+    {
+        int pick = rand.nextInt(ids + nums + ops + kws + comments);
+
+        if ((pick -= ids) < 0)
+            return word(1 + rand.nextInt(8));
+        if ((pick -= nums) < 0)
+        {
+            if (rand.nextBoolean())
+                return Integer.toString(rand.nextInt(100000));
+            return rand.nextInt(1000) + "." + rand.nextInt(1000);
+        }
+        if ((pick -= ops) < 0)
+            return OPERATORS[rand.nextInt(OPERATORS.length)];
+        if ((pick -= kws) < 0)
+            return KEYWORDS[rand.nextInt(KEYWORDS.length)];
+
+        StringBuilder comment = new StringBuilder("(*");
+        for (int i = rand.nextInt(6); i >= 0; i--)
+            comment.append(' ').append(word(1 + rand.nextInt(8)));
+        return comment.append(" *)").toString();
+    }
+
+    /**
+     * Builds a random identifier.
+     *
+     * @param len the length of the identifier.
+     * @return the identifier.
+     */
+    private String word(int len)
+    {
+        StringBuilder word = new StringBuilder(len);
+        for (int i = 0; i < len; i++)
+            word.append(LETTERS.charAt(rand.nextInt(LETTERS.length())));
+        return word.toString();
+    }
+}
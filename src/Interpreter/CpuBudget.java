@@ -0,0 +1,117 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package Interpreter;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Caps the CPU time a single session may use. The budget is a token
+ * bucket: it fills at a fixed share of wall clock time, up to a burst
+ * limit, and is drained by the CPU time the session actually uses. A
+ * session that overdraws its budget waits until the bucket has refilled.
+ * A budget belongs to one session and is not safe to share between
+ * threads.
+ */
+public class CpuBudget
+{
+    private static final ThreadMXBean THREADS = ManagementFactory
+            .getThreadMXBean();
+
+    private final double share; // The fraction of a CPU allowed.
+    private final long burst; // The most CPU time that can be saved up, ns.
+    private long balance; // The CPU time available, ns.
+    private long lastRefill; // When the bucket was last filled, ns.
+    private long workStart; // The CPU clock when the work began, ns.
+
+    /**
+     * Constructs a new budget that starts full.
+     *
+     * @param share   the fraction of one CPU the session may use.
+     * @param burstMs the most CPU time that can be used at once in
+     *                milliseconds.
+     * @throws IllegalArgumentException if the share is not in (0, 1] or the
+     *                                  burst is negative.
+     */
+    public CpuBudget(double share, long burstMs)
+            throws IllegalArgumentException
+    {
+        if (!(share > 0 && share <= 1))
+            throw new IllegalArgumentException("bad CPU share: " + share);
+        if (burstMs < 0)
+            throw new IllegalArgumentException("negative burst: " + burstMs);
+
+        this.share = share;
+        this.burst = burstMs * 1_000_000;
+        this.balance = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Waits until the budget is no longer overdrawn and starts metering a
+     * piece of work.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void begin() throws InterruptedException
+    {
+        refill();
+        if (balance < 0)
+        {
+            long waitNs = (long) (-balance / share);
+            Thread.sleep(waitNs / 1_000_000, (int) (waitNs % 1_000_000));
+            refill();
+        }
+        workStart = cpuTime();
+    }
+
+    /**
+     * Stops metering a piece of work and charges it to the budget.
+     */
+    public void end()
+    {
+        balance -= cpuTime() - workStart;
+    }
+
+    /**
+     * **********
+     * Private Methods **********
+     */
+    /**
+     * Adds the allowance earned since the last refill.
+     */
+    private void refill()
+    {
+        long now = System.nanoTime();
+        balance = Math.min(burst, balance + (long) ((now - lastRefill) * share));
+        lastRefill = now;
+    }
+
+    /**
+     * Get the CPU time of the current thread, falling back to wall clock
+     * time if the JVM can not measure it.
+     *
+     * @return the current time in nanoseconds.
+     */
+    private static long cpuTime()
+    {
+        if (THREADS.isCurrentThreadCpuTimeSupported())
+            return THREADS.getCurrentThreadCpuTime();
+        return System.nanoTime();
+    }
+}
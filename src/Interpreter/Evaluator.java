@@ -0,0 +1,43 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package Interpreter;
+
+import lexer.Token;
+
+/**
+ * Evaluates analyzed statements. Until the language has an evaluator, the
+ * result of a statement is its token listing. Building that listing costs
+ * no more than building an {@link ExpressionCache} key for it, so results
+ * are not cached yet. This class is safe to use from several threads.
+ */
+public class Evaluator
+{
+    /**
+     * Evaluates a single analyzed statement.
+     *
+     * @param stmt the statement to evaluate.
+     * @return the result of the statement.
+     */
+    public String evaluate(Statement stmt)
+    {
+        StringBuilder out = new StringBuilder();
+        for (Token tok : stmt.getTokens())
+            out.append(tok).append(System.lineSeparator());
+        return out.toString();
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package Interpreter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import lexer.Token;
+import lexer.TokenType;
+
+/**
+ * A bounded, thread-safe cache of expression results. Entries are keyed by
+ * the canonical form of an expression's token stream, so expressions that
+ * differ only in whitespace or comments share an entry. Each entry records
+ * the names it reads and is dropped when one of those names is rebound.
+ *
+ * <p>
+ * Lookups never lock. Each entry remembers when it was last used, and when
+ * the cache grows past its capacity one thread evicts the least recently
+ * used entries in a batch, so the order of eviction is only approximately
+ * LRU.
+ *
+ * <p>
+ * Nothing uses the cache yet. While a result is only the token listing of
+ * its statement, building the key costs as much as building the result.
+ * The cache is worth putting in front of {@link Evaluator} once results
+ * are computed.
+ *
+ * @param <V> the type of the cached results.
+ */
+public class ExpressionCache<V>
+{
+    private final int capacity; // The maximum number of entries.
+    private final int target; // The number of entries left by an eviction.
+    private final ConcurrentHashMap<String, Entry<V>> entries; // Key -> entry.
+    private final ConcurrentHashMap<String, Set<Entry<V>>> readers; // By name.
+    private final ReentrantLock evicting; // Held by the thread that evicts.
+    private final LongAdder hits; // The number of lookups that hit.
+    private final LongAdder misses; // The number of lookups that missed.
+    private final LongAdder evictions; // The number of entries evicted.
+    private final LongAdder invalidations; // Entries dropped by a rebind.
+
+    /**
+     * A cached result along with the names it depends on. Entries are
+     * compared by identity, so the reader index never confuses an entry
+     * with a later one for the same key.
+     */
+    private static class Entry<V>
+    {
+        private final String key; // The key the entry is cached under.
+        private final V value; // The cached result.
+        private final Set<String> reads; // The names the result depends on.
+        private volatile long lastUsed; // When the entry was last used.
+
+        private Entry(String key, V value, Set<String> reads)
+        {
+            this.key = key;
+            this.value = value;
+            this.reads = reads;
+            this.lastUsed = System.nanoTime();
+        }
+    }
+
+    /**
+     * Constructs a new cache.
+     *
+     * @param capacity the maximum number of entries to hold.
+     */
+    public ExpressionCache(int capacity)
+    {
+        this.capacity = capacity;
+        this.target = capacity - capacity / 8;
+        this.entries = new ConcurrentHashMap<>();
+        this.readers = new ConcurrentHashMap<>();
+        this.evicting = new ReentrantLock();
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.invalidations = new LongAdder();
+    }
+
+    /**
+     * Builds the canonical key of a token stream. Comment tokens are skipped
+     * and whitespace never reaches the token stream, so neither affects the
+     * key.
+     *
+     * @param tokens the tokens of the expression.
+     * @return the canonical key.
+     */
+    public static String key(List<Token> tokens)
+    {
+        StringBuilder key = new StringBuilder();
+        for (Token tok : tokens)
+        {
+            if (tok.getType() != TokenType.COMMENT)
+                key.append(tok).append('\n');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Looks up a cached result.
+     *
+     * @param key the canonical key of the expression.
+     * @return the cached result or null if there is none.
+     */
+    public V get(String key)
+    {
+        Entry<V> entry = entries.get(key);
+        if (entry == null)
+        {
+            misses.increment();
+            return null;
+        }
+        entry.lastUsed = System.nanoTime();
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * Caches a result, evicting the least recently used entries if the
+     * cache is full.
+     *
+     * @param key   the canonical key of the expression.
+     * @param reads the names the result depends on.
+     * @param value the result.
+     */
+    public void put(String key, Set<String> reads, V value)
+    {
+        Entry<V> entry = new Entry<>(key, value, reads);
+
+        // Index the entry before publishing it, then make sure no name was
+        // rebound in between; an invalidation that missed the entry would
+        // otherwise leave a stale result behind.
+        for (String name : reads)
+        {
+            readers.compute(name, (n, set) -> {
+                if (set == null)
+                    set = ConcurrentHashMap.newKeySet();
+                set.add(entry);
+                return set;
+            });
+        }
+
+        Entry<V> old = entries.put(key, entry);
+        if (old != null)
+            unlink(old);
+
+        for (String name : reads)
+        {
+            Set<Entry<V>> set = readers.get(name);
+            if (set == null || !set.contains(entry))
+            {
+                if (entries.remove(key, entry))
+                    unlink(entry);
+                break;
+            }
+        }
+
+        if (entries.size() > capacity && evicting.tryLock())
+        {
+            try
+            {
+                evict();
+            }
+            finally
+            {
+                evicting.unlock();
+            }
+        }
+    }
+
+    /**
+     * Drops every entry that depends on a name. This must be called
+     * whenever the name is rebound.
+     *
+     * @param name the name that was rebound.
+     */
+    public void invalidate(String name)
+    {
+        Set<Entry<V>> set = readers.remove(name);
+        if (set == null)
+            return;
+
+        for (Entry<V> entry : set)
+        {
+            if (entries.remove(entry.key, entry))
+            {
+                unlink(entry);
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * Drops every entry that depends on any name, keeping only the results
+     * of closed expressions. This is used when the bindings are discarded.
+     */
+    public void invalidateReaders()
+    {
+        for (String name : readers.keySet())
+            invalidate(name);
+    }
+
+    /**
+     * Get the number of lookups that found a result.
+     *
+     * @return the number of hits.
+     */
+    public long getHits()
+    {
+        return hits.sum();
+    }
+
+    /**
+     * Get the number of lookups that found no result.
+     *
+     * @return the number of misses.
+     */
+    public long getMisses()
+    {
+        return misses.sum();
+    }
+
+    /**
+     * Get the fraction of lookups that found a result.
+     *
+     * @return the hit ratio, or 0 if there have been no lookups.
+     */
+    public double getHitRatio()
+    {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Get the number of entries evicted to stay within capacity.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictions()
+    {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the number of entries dropped because a name was rebound.
+     *
+     * @return the number of invalidations.
+     */
+    public long getInvalidations()
+    {
+        return invalidations.sum();
+    }
+
+    /**
+     * Get the number of entries currently cached.
+     *
+     * @return the number of entries.
+     */
+    public int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Return a summary of the cache statistics.
+     *
+     * @return a string describing the cache statistics.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format(
+                "entries=%d hits=%d misses=%d hit-ratio=%.3f evictions=%d invalidations=%d",
+                size(), getHits(), getMisses(), getHitRatio(), getEvictions(),
+                getInvalidations());
+    }
+
+    /**
+     * **********
+     * Private Methods **********
+     */
+    /**
+     * Evicts the least recently used entries until the cache is back below
+     * its capacity. Evicting in batches shares the cost of finding the
+     * oldest entries among many puts.
+     */
+    private void evict()
+    {
+        List<Entry<V>> all = new ArrayList<>(entries.values());
+        int excess = all.size() - target;
+        if (excess <= 0)
+            return;
+
+        all.sort(Comparator.comparingLong(e -> e.lastUsed));
+        for (int i = 0; i < excess; i++)
+        {
+            Entry<V> entry = all.get(i);
+            if (entries.remove(entry.key, entry))
+            {
+                unlink(entry);
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Removes an entry from the reader index.
+     *
+     * @param entry the entry being removed.
+     */
+    private void unlink(Entry<V> entry)
+    {
+        for (String name : entry.reads)
+        {
+            readers.computeIfPresent(name, (n, set) -> {
+                set.remove(entry);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+}
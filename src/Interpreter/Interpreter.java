@@ -19,8 +19,18 @@ package Interpreter;
 
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.Scanner;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lexer.Lexer;
+import lexer.LexerState;
 import lexer.Token;
 import lexer.TokenType;
 
@@ -37,9 +47,30 @@ import merrimackutil.util.Tuple;
  */
 public class Interpreter
 {
+    private static final long FOLLOW_POLL_MS = 250; // Polling for appends.
+    private static final double SESSION_CPU_SHARE = 0.5; // CPU per session.
+    private static final int LOAD_ROUNDS = 50; // Script replays per session.
+    private static final long LOAD_THINK_MS = 10; // Mean pause between lines.
+
     private static boolean doHelp = false;
     private static boolean doFile = false;
     private static String fileName = null;
+    private static boolean doParallel = false;
+    private static EnumSet<TokenType> onlyTypes = null;
+    private static boolean doCount = false;
+    private static boolean doFollow = false;
+    private static boolean doWatch = false;
+    private static String watchDir = null;
+    private static boolean doBench = false;
+    private static String benchDir = null;
+    private static boolean doGenerate = false;
+    private static String generateDir = null;
+    private static int genFiles = 100;
+    private static int genSize = 64 * 1024;
+    private static String genMix = null;
+    private static boolean genOpts = false;
+    private static boolean doLoad = false;
+    private static int loadSessions = 0;
 
     /**
      * Show the license message to the screen.
@@ -59,10 +90,28 @@ public class Interpreter
     public static void usage()
     {
         System.err.println("usage:");
-        System.err.println("   mfl [--file <filename>]");
+        System.err.println("   mfl [--file <filename> [--parallel]]");
+        System.err.println("   mfl --file <filename> [--only <types>] [--count]");
+        System.err.println("   mfl --follow <filename>");
+        System.err.println("   mfl --watch <dir>");
+        System.err.println("   mfl --bench <dir>");
+        System.err.println(
+                "   mfl --generate <dir> [--files <n>] [--size <bytes>] [--mix <spec>]");
+        System.err.println("   mfl --load <sessions>");
         System.err.println("   mfl --help");
         System.err.println("options:"); 
         System.err.println("--file, -f \t\tInterpret the file.");
+        System.err.println("--parallel, -p \t\tEvaluate independent statements in parallel.");
+        System.err.println("--only, -o \t\tOnly lex tokens of the listed types, e.g. ID,INT.");
+        System.err.println("--count, -c \t\tPrint a histogram of token types instead of tokens.");
+        System.err.println("--follow, -t \t\tLex the file as it grows, like tail -f.");
+        System.err.println("--watch, -w \t\tRe-lex files in the directory as they change.");
+        System.err.println("--bench, -b \t\tBenchmark the pipeline over the .mfl files in the directory.");
+        System.err.println("--generate, -g \t\tWrite a synthetic corpus to the directory.");
+        System.err.println("--files, -n \t\tThe number of files to generate (default 100).");
+        System.err.println("--size, -s \t\tThe size of each generated file (default 65536).");
+        System.err.println("--mix, -m \t\tThe lexeme mix, e.g. id=4,num=3,op=4,kw=2,comment=1.");
+        System.err.println("--load, -l \t\tLoad test the session engine with simulated sessions.");
         System.err.println("--help, -h \t\tDisplay this message");
         System.exit(1);
     }
@@ -72,37 +121,10 @@ public class Interpreter
      */
     public static void runInteractive()
     {
-        String line = "";
-        Scanner scan = new Scanner(System.in);
-        boolean exit = false;
-        Lexer lex = null;
-        
         showLicense();
         System.out.println();
         System.out.println("MFL interactive mode. Enter .quit to exit.");
-        while (!exit)
-        {
-            System.out.print("mfl> ");
-            line = scan.nextLine();
-
-            // Interpret the line if needed.
-            line.trim();
-            if (!line.isEmpty() && !line.equals(".quit"))
-            {
-                // Try to interpret the program.
-                lex = new Lexer(line);
-                Token tok = lex.nextToken();
-                while (tok.getType() != TokenType.EOF)
-                {
-                    System.out.println(tok);
-                    tok = lex.nextToken();
-                }
-              
-            }
-            else if (line.equals(".quit"))
-                exit = true;
-        }
-        scan.close();
+        new Session(System.in, System.out).run();
     }
 
     /**
@@ -116,6 +138,13 @@ public class Interpreter
         try
         {
             lex = new Lexer(new File(fileName));
+            lex.setTokenTypes(onlyTypes);
+
+            if (doCount)
+            {
+                countTokens(lex);
+                return;
+            }
 
             Token tok = lex.nextToken();
             while (tok.getType() != TokenType.EOF)
@@ -131,6 +160,210 @@ public class Interpreter
         }
     }
 
+    /**
+     * Prints how many tokens of each type the lexer produces. Only the
+     * token types are computed, no tokens are built.
+     *
+     * @param lex the lexer to count the tokens of.
+     */
+    public static void countTokens(Lexer lex)
+    {
+        long[] counts = new long[TokenType.values().length];
+
+        TokenType type = lex.nextTokenType();
+        while (type != TokenType.EOF)
+        {
+            counts[type.ordinal()]++;
+            type = lex.nextTokenType();
+        }
+
+        for (TokenType t : TokenType.values())
+        {
+            if (counts[t.ordinal()] > 0)
+                System.out.println(t + " " + counts[t.ordinal()]);
+        }
+    }
+
+    /**
+     * Interprets a file, evaluating independent statements in parallel.
+     */
+    public static void interpretFileParallel()
+    {
+        ParallelEvaluator eval = new ParallelEvaluator(ForkJoinPool.commonPool(),
+                new Evaluator());
+
+        try
+        {
+            for (String res : eval.evaluate(Files.readString(Paths.get(fileName))))
+                System.out.print(res);
+        }
+        catch (IOException ex)
+        {
+            System.err.println(ex);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Lexes a file that is being appended to, only reading the new bytes
+     * each time the file grows. A token that ends at the end of the file
+     * is held back until more input arrives, since it may continue. The
+     * held back token is only re-lexed once the file changes size.
+     */
+    public static void followFile()
+    {
+        File file = new File(fileName);
+        LexerState state = new LexerState();
+        Lexer lex = null;
+        long seen = 0; // The length of the file at the last pass.
+
+        try
+        {
+            // A missing or unreadable file has length 0, so make sure it
+            // can be opened before waiting for it to grow.
+            new Lexer(file).close();
+
+            while (true)
+            {
+                long length = file.length();
+                if (length < state.getOffset())
+                    state = new LexerState(); // Truncated, start over.
+
+                if (length != seen && length > state.getOffset())
+                {
+                    lex = new Lexer(file, state);
+                    while (true)
+                    {
+                        LexerState before = lex.getState();
+                        Token tok = lex.nextToken();
+
+                        if (tok.getType() == TokenType.EOF)
+                        {
+                            state = lex.getState();
+                            break;
+                        }
+                        if (lex.isAtEnd())
+                        {
+                            state = lex.getState().isCommentOpen()
+                                    ? lex.getState() : before;
+                            break;
+                        }
+                        System.out.println(tok);
+                    }
+                    lex.close();
+                }
+                seen = length;
+                Thread.sleep(FOLLOW_POLL_MS);
+            }
+        }
+        catch (IOException ex)
+        {
+            System.err.println(ex);
+            System.exit(1);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Watches a directory and re-lexes its files as they change.
+     */
+    public static void watchDirectory()
+    {
+        try
+        {
+            Watcher watcher = new Watcher(Paths.get(watchDir),
+                    Runtime.getRuntime().availableProcessors());
+            watcher.run();
+        }
+        catch (IOException ex)
+        {
+            System.err.println(ex);
+            System.exit(1);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Benchmarks the pipeline over the sources in a directory and prints
+     * the results as JSON.
+     */
+    public static void runBenchmark()
+    {
+        List<Path> files;
+
+        try (Stream<Path> paths = Files.list(Paths.get(benchDir)))
+        {
+            files = paths.filter(p -> p.toString().endsWith(".mfl"))
+                    .sorted().collect(Collectors.toList());
+            System.out.println(new Benchmark(files, 5).run());
+        }
+        catch (IOException ex)
+        {
+            System.err.println(ex);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Writes a synthetic corpus for use with the benchmark.
+     */
+    public static void generateCorpus()
+    {
+        CorpusGenerator gen = new CorpusGenerator(42);
+
+        try
+        {
+            if (genMix != null)
+                gen.setMix(genMix);
+            gen.writeCorpus(Paths.get(generateDir), genFiles, genSize);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            System.err.println(ex.getMessage());
+            usage();
+        }
+        catch (IOException ex)
+        {
+            System.err.println(ex);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Load tests the session engine and prints the results as JSON.
+     */
+    public static void runLoadTest()
+    {
+        SessionEngine engine = new SessionEngine(SESSION_CPU_SHARE);
+
+        try
+        {
+            System.out.println(new LoadTest(loadSessions, LOAD_ROUNDS,
+                    LOAD_THINK_MS).run(engine));
+            engine.shutdown(0);
+        }
+        catch (IOException ex)
+        {
+            System.err.println(ex);
+            System.exit(1);
+        }
+        catch (ExecutionException ex)
+        {
+            System.err.println(ex.getCause());
+            System.exit(1);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Process the command line arguments.
      * 
@@ -140,15 +373,26 @@ public class Interpreter
     {
         OptionParser parser;
 
-        LongOption[] opts = new LongOption[2];
+        LongOption[] opts = new LongOption[13];
         opts[0] = new LongOption("help", false, 'h');
         opts[1] = new LongOption("file", true, 'f');
+        opts[2] = new LongOption("watch", true, 'w');
+        opts[3] = new LongOption("bench", true, 'b');
+        opts[4] = new LongOption("generate", true, 'g');
+        opts[5] = new LongOption("files", true, 'n');
+        opts[6] = new LongOption("size", true, 's');
+        opts[7] = new LongOption("mix", true, 'm');
+        opts[8] = new LongOption("parallel", false, 'p');
+        opts[9] = new LongOption("follow", true, 't');
+        opts[10] = new LongOption("only", true, 'o');
+        opts[11] = new LongOption("count", false, 'c');
+        opts[12] = new LongOption("load", true, 'l');
 
         Tuple<Character, String> currOpt;
 
         parser = new OptionParser(args);
         parser.setLongOpts(opts);
-        parser.setOptString("hf:");
+        parser.setOptString("hpcf:t:o:w:b:g:n:s:m:l:");
 
         while (parser.getOptIdx() != args.length)
         {
@@ -163,6 +407,47 @@ public class Interpreter
                 doFile = true;
                 fileName = currOpt.getSecond();
                 break;
+            case 't':
+                doFollow = true;
+                fileName = currOpt.getSecond();
+                break;
+            case 'w':
+                doWatch = true;
+                watchDir = currOpt.getSecond();
+                break;
+            case 'b':
+                doBench = true;
+                benchDir = currOpt.getSecond();
+                break;
+            case 'g':
+                doGenerate = true;
+                generateDir = currOpt.getSecond();
+                break;
+            case 'p':
+                doParallel = true;
+                break;
+            case 'o':
+                onlyTypes = parseTypes(currOpt.getSecond());
+                break;
+            case 'c':
+                doCount = true;
+                break;
+            case 'l':
+                doLoad = true;
+                loadSessions = parseCount(currOpt.getSecond());
+                break;
+            case 'n':
+                genOpts = true;
+                genFiles = parseCount(currOpt.getSecond());
+                break;
+            case 's':
+                genOpts = true;
+                genSize = parseCount(currOpt.getSecond());
+                break;
+            case 'm':
+                genOpts = true;
+                genMix = currOpt.getSecond();
+                break;
             case '?':
                 usage();
                 break;
@@ -170,6 +455,49 @@ public class Interpreter
         }
     }
 
+    /**
+     * Parses a comma separated list of token types from the command line.
+     *
+     * @param arg the argument to parse.
+     * @return the set of token types.
+     */
+    private static EnumSet<TokenType> parseTypes(String arg)
+    {
+        EnumSet<TokenType> types = EnumSet.noneOf(TokenType.class);
+
+        try
+        {
+            for (String name : arg.split(","))
+                types.add(TokenType.valueOf(name.trim().toUpperCase()));
+        }
+        catch (IllegalArgumentException ex)
+        {
+            usage();
+        }
+        return types;
+    }
+
+    /**
+     * Parses a positive count from the command line.
+     *
+     * @param arg the argument to parse.
+     * @return the count.
+     */
+    private static int parseCount(String arg)
+    {
+        try
+        {
+            int count = Integer.parseInt(arg);
+            if (count > 0)
+                return count;
+        }
+        catch (NumberFormatException ex)
+        {
+        }
+        usage();
+        return 0;
+    }
+
     /**
      * The entry point.
      * 
@@ -178,20 +506,36 @@ public class Interpreter
      */
     public static void main(String[] args)
     {
-        // Determine if we are looking at file or command line.
-        if (args.length > 2)
-            usage();
+        int modes;
 
         // Determine what the user requested.
         processArgs(args);
 
         // Verify that that this options are not conflicting.
-        if (doFile && doHelp)
+        modes = (doFile ? 1 : 0) + (doFollow ? 1 : 0) + (doWatch ? 1 : 0) + (doBench ? 1 : 0)
+                + (doGenerate ? 1 : 0) + (doLoad ? 1 : 0);
+        if (modes > 1 || (modes == 1 && doHelp))
+            usage();
+        if ((genOpts && !doGenerate) || (doParallel && !doFile))
+            usage();
+        if ((onlyTypes != null || doCount) && (!doFile || doParallel))
             usage();
 
         // Perform the correct action.
-        if (doFile)
+        if (doFile && doParallel)
+            interpretFileParallel();
+        else if (doFile)
             interpretFile();
+        else if (doFollow)
+            followFile();
+        else if (doWatch)
+            watchDirectory();
+        else if (doBench)
+            runBenchmark();
+        else if (doGenerate)
+            generateCorpus();
+        else if (doLoad)
+            runLoadTest();
         else if (doHelp)
             usage();
         else
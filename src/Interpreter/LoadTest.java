@@ -0,0 +1,172 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package Interpreter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import merrimackutil.json.types.JSONObject;
+
+/**
+ * Drives a session engine with simulated sessions fed from in-process
+ * streams. Each session replays a short script of expressions and
+ * bindings and then quits. Lines are typed one at a time with a random
+ * pause between them, so sessions spend most of their time blocked on
+ * input as they would with a person at the keyboard.
+ */
+public class LoadTest
+{
+    private static final String[] SCRIPT = { "(5 < 7) and (7 > 3)",
+            "val x := %d", "x + 1", "(* scaled *) x * 2.5",
+            "not true or false", "val y := x mod 3", "y >= 1" };
+
+    private final int sessions; // The number of sessions to simulate.
+    private final int rounds; // The number of times to replay the script.
+    private final long thinkMs; // The mean pause between lines.
+
+    /**
+     * Constructs a new load test.
+     *
+     * @param sessions the number of sessions to simulate.
+     * @param rounds   the number of times each session replays the script.
+     * @param thinkMs  the mean pause between lines in milliseconds.
+     */
+    public LoadTest(int sessions, int rounds, long thinkMs)
+    {
+        this.sessions = sessions;
+        this.rounds = rounds;
+        this.thinkMs = thinkMs;
+    }
+
+    /**
+     * Runs every session to completion on an engine.
+     *
+     * @param engine the engine to host the sessions.
+     * @return the results as a single line of JSON.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws ExecutionException   if a session failed.
+     * @throws IOException          if a session's input can not be set up.
+     */
+    public String run(SessionEngine engine)
+            throws InterruptedException, ExecutionException, IOException
+    {
+        List<Future<Session>> running = new ArrayList<>(sessions);
+        ScheduledExecutorService typists = Executors.newScheduledThreadPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        long lines = 0;
+        long start = System.nanoTime();
+
+        try
+        {
+            for (int i = 0; i < sessions; i++)
+            {
+                List<byte[]> script = script(i);
+                PipedOutputStream keys = new PipedOutputStream();
+
+                // Size the pipe to hold the whole script, so typing never
+                // blocks a typist thread.
+                PipedInputStream in = new PipedInputStream(keys,
+                        script.stream().mapToInt(b -> b.length).sum());
+                running.add(engine.open(in, OutputStream.nullOutputStream()));
+                type(typists, keys, script, 0);
+            }
+
+            for (Future<Session> f : running)
+                lines += f.get().getLineCount();
+        }
+        finally
+        {
+            typists.shutdownNow();
+        }
+
+        double secs = (System.nanoTime() - start) / 1e9;
+        JSONObject res = new JSONObject();
+        res.put("sessions", sessions);
+        res.put("lines", lines);
+        res.put("think_ms", thinkMs);
+        res.put("seconds", secs);
+        res.put("lines_per_sec", lines / secs);
+        return res.toJSON();
+    }
+
+    /**
+     * **********
+     * Private Methods **********
+     */
+    /**
+     * Types the next line of a script after a random pause, then schedules
+     * the line after it. The input is closed once the script is done.
+     *
+     * @param typists the scheduler to type on.
+     * @param keys    the stream the session reads from.
+     * @param script  the lines of the script.
+     * @param next    the index of the line to type.
+     */
+    private void type(ScheduledExecutorService typists, PipedOutputStream keys,
+            List<byte[]> script, int next)
+    {
+        long pause = thinkMs == 0 ? 0
+                : ThreadLocalRandom.current().nextLong(2 * thinkMs + 1);
+
+        typists.schedule(() -> {
+            try
+            {
+                keys.write(script.get(next));
+                keys.flush();
+                if (next + 1 < script.size())
+                    type(typists, keys, script, next + 1);
+                else
+                    keys.close();
+            }
+            catch (IOException ex)
+            {
+                System.err.println(ex);
+            }
+        }, pause, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Builds the input of a single session.
+     *
+     * @param id the number of the session.
+     * @return the lines the session will read, in order.
+     */
+    private List<byte[]> script(int id)
+    {
+        List<byte[]> lines = new ArrayList<>();
+
+        for (int r = 0; r < rounds; r++)
+        {
+            for (String line : SCRIPT)
+                lines.add((String.format(line, id + r) + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+        }
+        lines.add(".quit\n".getBytes(StandardCharsets.UTF_8));
+        return lines;
+    }
+}
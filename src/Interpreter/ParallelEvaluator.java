@@ -0,0 +1,180 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package Interpreter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Evaluates the statements of a program in parallel. Statements are grouped
+ * into waves using the names each one reads and binds: a statement runs in
+ * a later wave than the binding it reads, and a rebinding of a name runs
+ * after every statement that read the previous binding. The statements of
+ * a wave are independent and run together on a fork-join pool. Results are
+ * always returned in source order.
+ */
+public class ParallelEvaluator
+{
+    private static final int THRESHOLD = 16; // Statements per leaf task.
+
+    private final ForkJoinPool pool; // The pool to evaluate on.
+    private final Evaluator evaluator; // Evaluates a single statement.
+
+    /**
+     * A task that applies an action to a range of indices, splitting the
+     * range until it is small enough.
+     */
+    private static class RangeTask extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] indices; // The indices to process.
+        private final int lo; // The first index position, inclusive.
+        private final int hi; // The last index position, exclusive.
+        private final IntConsumer action; // The work for each index.
+
+        private RangeTask(int[] indices, int lo, int hi, IntConsumer action)
+        {
+            this.indices = indices;
+            this.lo = lo;
+            this.hi = hi;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (hi - lo <= THRESHOLD)
+            {
+                for (int i = lo; i < hi; i++)
+                    action.accept(indices[i]);
+                return;
+            }
+
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new RangeTask(indices, lo, mid, action),
+                    new RangeTask(indices, mid, hi, action));
+        }
+    }
+
+    /**
+     * Constructs a new evaluator.
+     *
+     * @param pool      the pool to evaluate statements on.
+     * @param evaluator the evaluator for single statements.
+     */
+    public ParallelEvaluator(ForkJoinPool pool, Evaluator evaluator)
+    {
+        this.pool = pool;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * Evaluates a program.
+     *
+     * @param source the program text.
+     * @return the result of each statement in source order.
+     */
+    public List<String> evaluate(String source)
+    {
+        List<Statement> stmts = Statement.split(source);
+        String[] results = new String[stmts.size()];
+        int[] all = new int[stmts.size()];
+
+        // Lexing a statement does not depend on any other statement.
+        for (int i = 0; i < all.length; i++)
+            all[i] = i;
+        pool.invoke(new RangeTask(all, 0, all.length,
+                i -> stmts.get(i).analyze()));
+
+        for (int[] wave : schedule(stmts))
+            pool.invoke(new RangeTask(wave, 0, wave.length,
+                    i -> results[i] = evaluator.evaluate(stmts.get(i))));
+
+        return List.of(results);
+    }
+
+    /**
+     * **********
+     * Private Methods **********
+     */
+    /**
+     * Groups analyzed statements into waves of independent statements.
+     *
+     * @param stmts the analyzed statements in source order.
+     * @return the waves in the order they must run.
+     */
+    private static List<int[]> schedule(List<Statement> stmts)
+    {
+        Map<String, Integer> lastDef = new HashMap<>(); // Name -> statement.
+        Map<String, Integer> lastRead = new HashMap<>(); // Name -> latest wave.
+        int[] waveOf = new int[stmts.size()];
+        int waves = 0;
+
+        for (int i = 0; i < stmts.size(); i++)
+        {
+            Statement stmt = stmts.get(i);
+            String def = stmt.getDefines();
+            int wave = 0;
+
+            for (String name : stmt.getReads())
+            {
+                Integer d = lastDef.get(name);
+                if (d != null)
+                    wave = Math.max(wave, waveOf[d] + 1);
+            }
+
+            if (def != null)
+            {
+                Integer d = lastDef.get(def);
+                if (d != null)
+                    wave = Math.max(wave, waveOf[d] + 1);
+                wave = Math.max(wave, lastRead.getOrDefault(def, -1) + 1);
+            }
+
+            waveOf[i] = wave;
+            waves = Math.max(waves, wave + 1);
+            for (String name : stmt.getReads())
+                lastRead.merge(name, wave, Math::max);
+            if (def != null)
+            {
+                lastDef.put(def, i);
+                lastRead.remove(def);
+            }
+        }
+
+        // Bucket the statements by wave, keeping source order in each.
+        int[] sizes = new int[waves];
+        for (int w : waveOf)
+            sizes[w]++;
+
+        List<int[]> result = new ArrayList<>(waves);
+        for (int w = 0; w < waves; w++)
+            result.add(new int[sizes[w]]);
+
+        int[] fill = new int[waves];
+        for (int i = 0; i < waveOf.length; i++)
+            result.get(waveOf[i])[fill[waveOf[i]]++] = i;
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package Interpreter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import lexer.Lexer;
+
+/**
+ * A single interactive session. Each session owns its lexer and its
+ * bindings, so any number of sessions can run side by side.
+ */
+public class Session implements Runnable
+{
+    private final BufferedReader in; // Where the session reads lines from.
+    private final PrintStream out; // Where the session writes results to.
+    private final Lexer lex; // The lexer reused for every line.
+    private final Evaluator eval; // Evaluates lines.
+    private final Map<String, String> bindings; // Name -> binding statement.
+    private final Semaphore cpus; // Limits sessions working at once, or null.
+    private final CpuBudget budget; // Limits this session's CPU, or null.
+    private long lines; // The number of lines evaluated.
+
+    /**
+     * Constructs a new session with no limits on its CPU use.
+     *
+     * @param in  the stream to read lines from.
+     * @param out the stream to write results to.
+     */
+    public Session(InputStream in, OutputStream out)
+    {
+        this(in, out, null, null);
+    }
+
+    /**
+     * Constructs a new session whose work is limited by a scheduler.
+     *
+     * @param in     the stream to read lines from.
+     * @param out    the stream to write results to.
+     * @param cpus   the permits to hold while working, or null.
+     * @param budget the CPU budget of the session, or null.
+     */
+    Session(InputStream in, OutputStream out, Semaphore cpus,
+            CpuBudget budget)
+    {
+        this.in = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8));
+        this.out = out instanceof PrintStream ? (PrintStream) out
+                : new PrintStream(out, false, StandardCharsets.UTF_8);
+        this.lex = new Lexer("");
+        this.eval = new Evaluator();
+        this.bindings = new HashMap<>();
+        this.cpus = cpus;
+        this.budget = budget;
+    }
+
+    /**
+     * Reads and evaluates lines until {@code .quit} or the end of the input.
+     */
+    @Override
+    public void run()
+    {
+        String line;
+
+        try
+        {
+            while (true)
+            {
+                out.print("mfl> ");
+                out.flush();
+                line = in.readLine();
+                if (line == null || line.trim().equals(".quit"))
+                    break;
+
+                if (budget != null)
+                    budget.begin();
+                if (cpus != null)
+                    cpus.acquire();
+                try
+                {
+                    handle(line);
+                }
+                finally
+                {
+                    if (cpus != null)
+                        cpus.release();
+                    if (budget != null)
+                        budget.end();
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            out.println(ex);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        out.flush();
+    }
+
+    /**
+     * Get the bindings made in this session.
+     *
+     * @return the bound names mapped to the statements that bound them.
+     */
+    public Map<String, String> getBindings()
+    {
+        return Collections.unmodifiableMap(bindings);
+    }
+
+    /**
+     * Get the number of lines this session has evaluated.
+     *
+     * @return the number of lines evaluated.
+     */
+    public long getLineCount()
+    {
+        return lines;
+    }
+
+    /**
+     * **********
+     * Private Methods **********
+     */
+    /**
+     * Handles a single line of input and writes its result.
+     *
+     * @param line the line to handle.
+     */
+    private void handle(String line)
+    {
+        if (!line.isBlank())
+        {
+            Statement stmt = new Statement(line);
+            stmt.analyze(lex);
+            if (stmt.getDefines() != null)
+                bindings.put(stmt.getDefines(), line);
+            lines++;
+            out.print(eval.evaluate(stmt));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package Interpreter;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hosts many interactive sessions at once. Every session runs on its own
+ * thread from the engine's executor and spends most of its life blocked on
+ * input. Only a fixed number of sessions may evaluate at the same time,
+ * and each session is held to a share of one CPU.
+ *
+ * <p>
+ * Sessions read from and write to plain streams, so the engine can be
+ * driven by sockets or by in-process streams for load testing. On a JDK
+ * with virtual threads, {@code Executors.newVirtualThreadPerTaskExecutor()}
+ * is the natural executor to pass in.
+ */
+public class SessionEngine
+{
+    private static final long BURST_MS = 50; // CPU a session may use at once.
+
+    private final ExecutorService executor; // Runs the sessions.
+    private final Semaphore cpus; // Sessions allowed to evaluate at once.
+    private final double cpuShare; // The share of a CPU per session.
+    private final AtomicInteger active; // The number of running sessions.
+
+    /**
+     * Constructs a new engine on a thread per session, letting as many
+     * sessions evaluate at once as there are processors.
+     *
+     * @param cpuShare the fraction of one CPU each session may use.
+     */
+    public SessionEngine(double cpuShare)
+    {
+        this(Executors.newCachedThreadPool(),
+                Runtime.getRuntime().availableProcessors(), cpuShare);
+    }
+
+    /**
+     * Constructs a new engine.
+     *
+     * @param executor      the executor to run sessions on; it needs a
+     *                      thread for every open session.
+     * @param maxConcurrent the number of sessions that may evaluate at once.
+     * @param cpuShare      the fraction of one CPU each session may use.
+     * @throws IllegalArgumentException if the share is not in (0, 1].
+     */
+    public SessionEngine(ExecutorService executor, int maxConcurrent,
+            double cpuShare) throws IllegalArgumentException
+    {
+        if (!(cpuShare > 0 && cpuShare <= 1))
+            throw new IllegalArgumentException("bad CPU share: " + cpuShare);
+
+        this.executor = executor;
+        this.cpus = new Semaphore(maxConcurrent);
+        this.cpuShare = cpuShare;
+        this.active = new AtomicInteger();
+    }
+
+    /**
+     * Opens a new session on a pair of streams.
+     *
+     * @param in  the stream the session reads lines from.
+     * @param out the stream the session writes results to.
+     * @return a future that completes with the session when it ends.
+     * @throws RejectedExecutionException if the engine has been shut down.
+     */
+    public Future<Session> open(InputStream in, OutputStream out)
+            throws RejectedExecutionException
+    {
+        Session session = new Session(in, out, cpus,
+                new CpuBudget(cpuShare, BURST_MS));
+
+        // Count the session before it can start, so that it can never be
+        // seen ending before it began.
+        active.incrementAndGet();
+        try
+        {
+            return executor.submit(() -> {
+                try
+                {
+                    session.run();
+                }
+                finally
+                {
+                    active.decrementAndGet();
+                }
+            }, session);
+        }
+        catch (RejectedExecutionException ex)
+        {
+            active.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the number of sessions that have not yet ended.
+     *
+     * @return the number of open sessions.
+     */
+    public int getActiveSessions()
+    {
+        return active.get();
+    }
+
+    /**
+     * Stops accepting sessions and waits for the open ones to end.
+     *
+     * @param timeoutMs the longest time to wait in milliseconds.
+     * @return true if every session ended in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean shutdown(long timeoutMs) throws InterruptedException
+    {
+        executor.shutdown();
+        return executor.awaitTermination(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+}
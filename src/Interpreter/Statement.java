@@ -0,0 +1,179 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package Interpreter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import lexer.Lexer;
+import lexer.Token;
+import lexer.TokenType;
+
+/**
+ * A single statement of an MFL program along with the names it reads and
+ * the name it binds, if any.
+ */
+public class Statement
+{
+    private final String text; // The source text of the statement.
+    private List<Token> tokens; // The tokens of the statement.
+    private Set<String> reads; // The identifiers the statement reads.
+    private String defines; // The name bound by a val, or null.
+
+    /**
+     * Constructs a new statement from its source text. The statement is not
+     * lexed until {@link #analyze()} is called.
+     *
+     * @param text the source text of the statement.
+     */
+    public Statement(String text)
+    {
+        this.text = text;
+    }
+
+    /**
+     * Splits a program into statements. Each line is a statement, except
+     * that a comment spanning several lines stays with the line it starts
+     * on. Blank lines are dropped.
+     *
+     * @param source the program text.
+     * @return the statements in source order.
+     */
+    public static List<Statement> split(String source)
+    {
+        List<Statement> stmts = new ArrayList<>();
+        boolean inComment = false;
+        int start = 0;
+
+        for (int i = 0; i <= source.length(); i++)
+        {
+            char c = i < source.length() ? source.charAt(i) : '\n';
+
+            if (!inComment && c == '(' && i + 1 < source.length()
+                    && source.charAt(i + 1) == '*')
+            {
+                inComment = true;
+                i++;
+            }
+            else if (inComment && c == '*' && i + 1 < source.length()
+                    && source.charAt(i + 1) == ')')
+            {
+                inComment = false;
+                i++;
+            }
+            else if (c == '\n' && (!inComment || i == source.length()))
+            {
+                String line = source.substring(start, i);
+                if (!line.isBlank())
+                    stmts.add(new Statement(line));
+                start = i + 1;
+            }
+        }
+        return stmts;
+    }
+
+    /**
+     * Lexes the statement and works out which names it reads and binds.
+     * The first identifier after {@code val} is the bound name; every other
+     * identifier is a read.
+     */
+    public void analyze()
+    {
+        analyze(new Lexer(text));
+    }
+
+    /**
+     * Analyzes the statement using an existing lexer, which is reset to
+     * the text of the statement first.
+     *
+     * @param lex the lexer to reuse.
+     */
+    public void analyze(Lexer lex)
+    {
+        List<Token> toks = new ArrayList<>();
+        Set<String> ids = new LinkedHashSet<>();
+        boolean afterVal = false;
+
+        defines = null;
+        lex.reset(text);
+        Token tok = lex.nextToken();
+        while (tok.getType() != TokenType.EOF)
+        {
+            toks.add(tok);
+            if (tok.getType() == TokenType.VAL)
+                afterVal = defines == null;
+            else if (tok.getType() == TokenType.ID)
+            {
+                if (afterVal)
+                    defines = tok.getValue();
+                else
+                    ids.add(tok.getValue());
+                afterVal = false;
+            }
+            else if (tok.getType() != TokenType.COMMENT)
+                afterVal = false;
+            tok = lex.nextToken();
+        }
+
+        tokens = Collections.unmodifiableList(toks);
+        reads = Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * Get the source text of the statement.
+     *
+     * @return the source text.
+     */
+    public String getText()
+    {
+        return text;
+    }
+
+    /**
+     * Get the tokens of the statement.
+     *
+     * @return the tokens, or null if the statement has not been analyzed.
+     */
+    public List<Token> getTokens()
+    {
+        return tokens;
+    }
+
+    /**
+     * Get the identifiers the statement reads.
+     *
+     * @return the names read, or null if the statement has not been
+     *         analyzed.
+     */
+    public Set<String> getReads()
+    {
+        return reads;
+    }
+
+    /**
+     * Get the name bound by the statement.
+     *
+     * @return the name bound by a {@code val}, or null if there is none.
+     */
+    public String getDefines()
+    {
+        return defines;
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package Interpreter;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import lexer.Lexer;
+import lexer.Token;
+import lexer.TokenType;
+
+/**
+ * Watches a directory tree and re-lexes the MFL files in it as they are
+ * created or modified. Bursts of events for the same file are debounced
+ * and the lexing itself happens on a small pool of worker threads.
+ */
+public class Watcher
+{
+    private static final long DEBOUNCE_MS = 100; // Quiet period per file.
+
+    private final WatchService service; // The underlying watch service.
+    private final Map<WatchKey, Path> dirs; // The directories being watched.
+    private final Map<Path, Long> pending; // Files waiting for a quiet period.
+    private final Map<Path, Result> results; // The latest tokens per file.
+    private final ExecutorService workers; // The pool that does the lexing.
+    private final AtomicLong generation; // Orders the submitted jobs.
+
+    /**
+     * The tokens produced by a single lexing job. A result with no tokens
+     * marks a deleted file, so that jobs started before the delete can not
+     * bring it back.
+     */
+    private static class Result
+    {
+        private final long generation; // The job that produced the tokens.
+        private final List<Token> tokens; // The tokens, null if deleted.
+
+        private Result(long generation, List<Token> tokens)
+        {
+            this.generation = generation;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * Constructs a new watcher for the directory tree rooted at {@code root}.
+     *
+     * @param root    the directory to watch.
+     * @param threads the number of worker threads to lex with.
+     * @throws IOException if the directory can not be watched.
+     */
+    public Watcher(Path root, int threads) throws IOException
+    {
+        service = FileSystems.getDefault().newWatchService();
+        dirs = new HashMap<>();
+        pending = new HashMap<>();
+        results = new ConcurrentHashMap<>();
+        workers = Executors.newFixedThreadPool(threads);
+        generation = new AtomicLong();
+
+        register(root);
+    }
+
+    /**
+     * Get the most recent tokens for a file.
+     *
+     * @param file the file to look up.
+     * @return the tokens of the file or {@code null} if the file has not
+     *         been lexed or was deleted.
+     */
+    public List<Token> getTokens(Path file)
+    {
+        Result res = results.get(file.toAbsolutePath().normalize());
+        return res == null ? null : res.tokens;
+    }
+
+    /**
+     * Lexes every file in the tree and then re-lexes files as they change.
+     * This method only returns if the watch service is closed.
+     *
+     * @throws IOException          if the tree can not be read.
+     * @throws InterruptedException if interrupted while waiting for events.
+     */
+    public void run() throws IOException, InterruptedException
+    {
+        WatchKey key;
+
+        for (Path dir : new ArrayList<>(dirs.values()))
+            scan(dir);
+
+        try
+        {
+            while (!dirs.isEmpty())
+            {
+                // Block until something happens or the next file is ready.
+                if (pending.isEmpty())
+                    key = service.take();
+                else
+                    key = service.poll(nextDeadline(), TimeUnit.MILLISECONDS);
+
+                if (key != null)
+                    processEvents(key);
+
+                submitQuiet();
+            }
+        }
+        finally
+        {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * **********
+     * Private Methods **********
+     */
+    /**
+     * Registers a directory and all of its sub-directories.
+     *
+     * @param start the directory to start at.
+     * @return the directories that were registered.
+     * @throws IOException if the directory can not be registered.
+     */
+    private List<Path> register(Path start) throws IOException
+    {
+        List<Path> added = new ArrayList<>();
+
+        try (Stream<Path> paths = Files.walk(start))
+        {
+            Iterator<Path> it = paths.filter(Files::isDirectory).iterator();
+            while (it.hasNext())
+            {
+                Path dir = it.next().toAbsolutePath().normalize();
+                WatchKey key = dir.register(service,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                dirs.put(key, dir);
+                added.add(dir);
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Queues every MFL file in a directory (but not its sub-directories).
+     *
+     * @param dir the directory to scan.
+     * @throws IOException if the directory can not be read.
+     */
+    private void scan(Path dir) throws IOException
+    {
+        try (Stream<Path> paths = Files.list(dir))
+        {
+            Iterator<Path> it = paths.iterator();
+            while (it.hasNext())
+            {
+                Path file = it.next();
+                if (isSource(file))
+                    submit(file);
+            }
+        }
+    }
+
+    /**
+     * Records the events of a key as pending work.
+     *
+     * @param key the key that was signalled.
+     * @throws IOException if a new directory can not be registered.
+     */
+    private void processEvents(WatchKey key) throws IOException
+    {
+        Path dir = dirs.get(key);
+        long now = System.currentTimeMillis();
+
+        for (WatchEvent<?> event : key.pollEvents())
+        {
+            // Events were lost, rescan the directory.
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+            {
+                scan(dir);
+                continue;
+            }
+
+            Path file = dir.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE)
+            {
+                // Only sources get a tombstone, so that editor temporary
+                // files do not pile up. Anything else may have been a
+                // directory, so forget the files that were under it.
+                if (file.toString().endsWith(".mfl"))
+                {
+                    pending.remove(file);
+                    results.merge(file, new Result(
+                            generation.incrementAndGet(), null),
+                            Watcher::newer);
+                }
+                else
+                {
+                    pending.keySet().removeIf(p -> p.startsWith(file));
+                    results.keySet().removeIf(p -> p.startsWith(file));
+                }
+            }
+            else if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                    && Files.isDirectory(file))
+            {
+                for (Path added : register(file))
+                    scan(added);
+            }
+            else if (isSource(file))
+                pending.put(file, now);
+        }
+
+        if (!key.reset())
+            dirs.remove(key);
+    }
+
+    /**
+     * Determine how long until the next pending file is quiet.
+     *
+     * @return the number of milliseconds to wait.
+     */
+    private long nextDeadline()
+    {
+        long earliest = Collections.min(pending.values());
+        return Math.max(0, earliest + DEBOUNCE_MS - System.currentTimeMillis());
+    }
+
+    /**
+     * Submits every pending file that has been quiet long enough.
+     */
+    private void submitQuiet()
+    {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Long>> it = pending.entrySet().iterator();
+
+        while (it.hasNext())
+        {
+            Map.Entry<Path, Long> entry = it.next();
+            if (now - entry.getValue() >= DEBOUNCE_MS)
+            {
+                submit(entry.getKey());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Lexes a file on the worker pool and records the result. A result is
+     * only kept if no newer job for the same file has finished first.
+     *
+     * @param file the file to lex.
+     */
+    private void submit(Path file)
+    {
+        Path path = file.toAbsolutePath().normalize();
+        long gen = generation.incrementAndGet();
+
+        workers.execute(() -> {
+            List<Token> tokens = new ArrayList<>();
+            StringBuilder out = new StringBuilder();
+
+            try
+            {
+                Lexer lex = new Lexer(Files.readString(path));
+                Token tok = lex.nextToken();
+                while (tok.getType() != TokenType.EOF)
+                {
+                    tokens.add(tok);
+                    out.append(tok).append(System.lineSeparator());
+                    tok = lex.nextToken();
+                }
+            }
+            catch (IOException ex)
+            {
+                System.err.println(ex);
+                return;
+            }
+
+            Result res = results.merge(path, new Result(gen, tokens),
+                    Watcher::newer);
+            if (res.generation == gen)
+            {
+                synchronized (System.out)
+                {
+                    System.out.println("==> " + path);
+                    System.out.print(out);
+                }
+            }
+        });
+    }
+
+    /**
+     * Picks the result of the later job.
+     *
+     * @param old the result already recorded.
+     * @param cur the result being recorded.
+     * @return whichever result came from the later job.
+     */
+    private static Result newer(Result old, Result cur)
+    {
+        return cur.generation > old.generation ? cur : old;
+    }
+
+    /**
+     * Determine if a path names an MFL source file.
+     *
+     * @param file the path to check.
+     * @return true if the path is a regular .mfl file.
+     */
+    private static boolean isSource(Path file)
+    {
+        return file.toString().endsWith(".mfl") && Files.isRegularFile(file);
+    }
+}
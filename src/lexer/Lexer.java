@@ -18,10 +18,14 @@ package lexer;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.StringReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * This file implements a basic lexical analyzer.
@@ -30,11 +34,19 @@ import java.io.StringReader;
  */
 public class Lexer {
 
-    private BufferedReader input; // The input to the lexer.
+    private BufferedReader input; // The input to the lexer, or null.
+    private CharSequence text; // The input when lexing a string, or null.
+    private int textPos; // The position of the next character in text.
     private char nextChar; // The next character read.
     private boolean skipRead; // Whether or not to skip the next char
     // read.
     private long currentLineNumber; // The current line number being processed.
+    private long offset; // The number of UTF-8 bytes read so far.
+    private boolean commentOpen; // Whether we are inside a comment.
+    private boolean commentStar; // Whether the last comment char was a *.
+    private final StringBuilder lexeme = new StringBuilder(); // The lexeme read.
+    private String literal; // The fixed value of the token, if it has one.
+    private EnumSet<TokenType> wanted; // The token types to return, or null.
 
     private enum CharacterClass {
         LETTER, DIGIT, WHITE_SPACE, OTHER, END
@@ -59,82 +71,231 @@ public class Lexer {
      * @param input the input to lexically analyze.
      */
     public Lexer(String input) {
-        this.input = new BufferedReader(new StringReader(input));
+        text = input;
         currentLineNumber = 1;
     }
 
+    /**
+     * Constructs a new lexical analyzer that resumes lexing a file from a
+     * previously saved state. Only the bytes after the saved offset are
+     * read, so a file that is being appended to can be followed cheaply.
+     * The file is assumed to be UTF-8 encoded.
+     *
+     * @param file  the file to open for lexical analysis.
+     * @param state the state to resume from.
+     * @throws IOException if the file can not be opened or positioned.
+     */
+    public Lexer(File file, LexerState state) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+
+        in.getChannel().position(state.getOffset());
+        input = new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8));
+        offset = state.getOffset();
+        currentLineNumber = state.getLineNumber();
+        commentOpen = state.isCommentOpen();
+        commentStar = state.isCommentStar();
+        skipRead = state.hasLookahead();
+        if (skipRead) {
+            nextChar = state.getLookahead();
+            nextClass = classify(nextChar);
+        }
+    }
+
+    /**
+     * Resets the lexer to analyze a new string, so that one lexer can be
+     * reused for many inputs. The string is read in place, so nothing is
+     * allocated per input. The selected token types are kept.
+     *
+     * @param input the input to lexically analyze.
+     */
+    public void reset(String input) {
+        close();
+        this.input = null;
+        text = input;
+        textPos = 0;
+        currentLineNumber = 1;
+        offset = 0;
+        skipRead = false;
+        nextChar = '\0';
+        nextClass = null;
+        commentOpen = false;
+        commentStar = false;
+    }
+
     /**
      * Gets the next token from the stream.
      *
      * @return the next token.
      */
     public Token nextToken() {
-        String value = ""; // The value to be associated with the token.
+        TokenType type = nextTokenType();
+        return new Token(type, literal != null ? literal : lexeme.toString());
+    }
+
+    /**
+     * Gets the type of the next token from the stream without building the
+     * token itself. Tokens of types not selected with
+     * {@link #setTokenTypes(Set)} are skipped.
+     *
+     * @return the type of the next token.
+     */
+    public TokenType nextTokenType() {
+        TokenType type = scan();
+        while (wanted != null && type != TokenType.EOF
+                && !wanted.contains(type)) {
+            type = scan();
+        }
+        return type;
+    }
+
+    /**
+     * Restricts the token types returned by the lexer. Tokens of other
+     * types are still recognized but are skipped without building a value
+     * or a token for them. The end of file token is always returned.
+     *
+     * @param types the token types to return, or null to return all tokens.
+     */
+    public void setTokenTypes(Set<TokenType> types) {
+        if (types == null) {
+            wanted = null;
+        } else {
+            wanted = EnumSet.noneOf(TokenType.class);
+            wanted.addAll(types);
+        }
+    }
+
+    /**
+     * Get the current line number being processed.
+     *
+     * @return the current line number being processed.
+     */
+    public long getLineNumber() {
+        return currentLineNumber;
+    }
+
+    /**
+     * Saves the current state of the lexer so that lexing can be resumed
+     * later with {@link #Lexer(File, LexerState)}.
+     *
+     * @return the current state.
+     */
+    public LexerState getState() {
+        boolean lookahead = skipRead && nextClass != CharacterClass.END;
+        return new LexerState(offset, currentLineNumber, nextChar, lookahead,
+                commentOpen, commentStar);
+    }
+
+    /**
+     * Determine if the lexer has reached the end of its input. A token
+     * returned while at the end may continue if more input is appended.
+     *
+     * @return true if the end of the input has been read.
+     */
+    public boolean isAtEnd() {
+        return nextClass == CharacterClass.END;
+    }
+
+    /**
+     * Closes the input of the lexer.
+     */
+    public void close() {
+        if (input == null) {
+            return;
+        }
+        try {
+            input.close();
+        } catch (IOException ioe) {
+            System.err.println("Internal error (close()): " + ioe);
+        }
+    }
+
+    /**
+     * **********
+     * Private Methods **********
+     */
+    /**
+     * Scans the next token from the stream. Its value is left in
+     * {@code literal} if it is fixed and in {@code lexeme} otherwise.
+     *
+     * @return the type of the token.
+     */
+    private TokenType scan() {
+        lexeme.setLength(0);
+        literal = null;
+
+        // Finish a comment left open by a resumed state.
+        if (commentOpen) {
+            getChar();
+            if (nextClass != CharacterClass.END) {
+                return comment();
+            }
+        }
 
         getNonBlank();
         switch (nextClass) {
             // The state where we are recognizing identifiers.
             // Regex: [A-Za-Z][0-9a-zA-z]*
             case LETTER:
-                value += nextChar;
+                lexeme.append(nextChar);
                 getChar();
 
                 // Read the rest of the identifier.
                 while (nextClass == CharacterClass.DIGIT
                         || nextClass == CharacterClass.LETTER) {
-                    value += nextChar;
+                    lexeme.append(nextChar);
                     getChar();
                 }
                 unread(); // The symbol just read is part of the next token.
 
-                if (value.equalsIgnoreCase("TRUE")) {
-                    return new Token(TokenType.TRUE, value);
-                } else if (value.equals("false")) {
-                    return new Token(TokenType.FALSE, value);
-                } else if (value.equals("mod")) {
-                    return new Token(TokenType.MOD, value);
-                } else if (value.equals("not")) {
-                    return new Token(TokenType.NOT, value);
-                } else if (value.equals("and")) {
-                    return new Token(TokenType.AND, value);
-                } else if (value.equals("or")) {
-                    return new Token(TokenType.OR, value);
-                } else if (value.equals("val")) {
-                    return new Token(TokenType.VAL, value);
+                if (lexemeEqualsIgnoreCase("TRUE")) {
+                    return TokenType.TRUE;
+                } else if ("false".contentEquals(lexeme)) {
+                    return TokenType.FALSE;
+                } else if ("mod".contentEquals(lexeme)) {
+                    return TokenType.MOD;
+                } else if ("not".contentEquals(lexeme)) {
+                    return TokenType.NOT;
+                } else if ("and".contentEquals(lexeme)) {
+                    return TokenType.AND;
+                } else if ("or".contentEquals(lexeme)) {
+                    return TokenType.OR;
+                } else if ("val".contentEquals(lexeme)) {
+                    return TokenType.VAL;
                 }
-                return new Token(TokenType.ID, value);
+                return TokenType.ID;
 
             // The state where we are recognizing digits.
             // Regex: [0-9]+
             case DIGIT:
-                value += nextChar;
+                lexeme.append(nextChar);
                 getChar();
 
                 while (nextClass == CharacterClass.DIGIT) {
-                    value += nextChar;
+                    lexeme.append(nextChar);
                     getChar();
                 }
 
                 if (nextChar == '.') // Decimal point.
                 {
-                    value += nextChar;
+                    lexeme.append(nextChar);
                     getChar();
 
                     if (nextClass == CharacterClass.DIGIT) {
                         while (nextClass == CharacterClass.DIGIT) {
-                            value += nextChar;
+                            lexeme.append(nextChar);
                             getChar();
                         }
-                        return new Token(TokenType.REAL, value);
+                        return TokenType.REAL;
                     } else {
                         unread();
-                        return new Token(TokenType.UNKNOWN, value);
+                        return TokenType.UNKNOWN;
                     }
                 }
 
                 unread();
 
-                return new Token(TokenType.INT, value);
+                return TokenType.INT;
 
             // Handles all special character symbols.
             case OTHER:
@@ -142,130 +303,125 @@ public class Lexer {
 
             // We reached the end of our input.
             case END:
-                return new Token(TokenType.EOF, "");
+                return fixed(TokenType.EOF, "");
 
             // This should never be reached.
             default:
-                return new Token(TokenType.UNKNOWN, "");
+                return fixed(TokenType.UNKNOWN, "");
         }
     }
 
-    /**
-     * Get the current line number being processed.
-     *
-     * @return the current line number being processed.
-     */
-    public long getLineNumber() {
-        return currentLineNumber;
-    }
-
-    /**
-     * **********
-     * Private Methods **********
-     */
     /**
      * Processes the {@code nextChar} and returns the resulting token.
      *
-     * @return the new token.
+     * @return the type of the new token.
      */
-    private Token lookup() {
+    private TokenType lookup() {
 
         switch (nextChar) {
             case '+':
-                return new Token(TokenType.ADD, "+");
+                return fixed(TokenType.ADD, "+");
             case '-':
-                return new Token(TokenType.SUB, "-");
+                return fixed(TokenType.SUB, "-");
             case '*':
-                return new Token(TokenType.MULT, "*");
+                return fixed(TokenType.MULT, "*");
             case '/':
-                return new Token(TokenType.DIV, "/");
+                return fixed(TokenType.DIV, "/");
             // Handle > and >=
             case '>':
                 getChar();
                 if (nextChar == '=') {
                     getChar();
-                    return new Token(TokenType.GTE, ">=");
+                    return fixed(TokenType.GTE, ">=");
                 } else {
                     unread();
-                    return new Token(TokenType.GT, ">");
+                    return fixed(TokenType.GT, ">");
                 }
             // Handle < and <=
             case '<':
                 getChar();
                 if (nextChar == '=') {
                     getChar();
-                    return new Token(TokenType.LTE, "<=");
+                    return fixed(TokenType.LTE, "<=");
                 } else {
                     unread();
-                    return new Token(TokenType.LT, "<");
+                    return fixed(TokenType.LT, "<");
                 }
             case '=':
-                return new Token(TokenType.EQ, "=");
+                return fixed(TokenType.EQ, "=");
             // Handle ! and !=
             case '!':
                 getChar();
                 if (nextChar == '=') {
                     getChar();
-                    return new Token(TokenType.NEQ, "!=");
+                    return fixed(TokenType.NEQ, "!=");
                 }
             // Right paran
             case ')':
                 getChar();
-                return new Token(TokenType.RPAREN, ")");
+                return fixed(TokenType.RPAREN, ")");
             // Handle := assign
             case ':':
                 getChar();
                 if (nextChar == '=') {
                     getChar();
-                    return new Token(TokenType.ASSIGN, ":=");
+                    return fixed(TokenType.ASSIGN, ":=");
                 }
             case '(':
                 getChar();
                 // Start of a comment
                 if (nextChar == '*') {
                     getChar();
-                    boolean inComment = true;
-                    while (inComment) {
-                        // While not any * or end detected, consume chars
-                        while (nextChar != '*' && nextClass != CharacterClass.END) {
-                            getChar();
-                        }
-                        // IF * detected consume and check for )
-                        if (nextChar == '*') {
-                            getChar(); 
-                            // If ) found consume and return end of comment detected
-                            if (nextChar == ')') {
-                                inComment = false;
-                                getChar();
-                                return new Token(TokenType.COMMENT, "COMMENT");
-                            }
-                        } else {
-                            // Handle a possible incomplete comment
-                            return new Token(TokenType.UNKNOWN, "POSSIBLE INCOMPLETE COMMENT");
-                        }
-                    }
+                    commentStar = false;
+                    return comment();
                 } else {
                     unread(); // Makes sure neigbhoring chars of a left paran aren't ignored
-                    return new Token(TokenType.LPAREN, "(");
+                    return fixed(TokenType.LPAREN, "(");
                 }
             // Handle REAL where a 0 is ommitted from the beginning
             case '.':
                 getChar();
                 if (nextClass == CharacterClass.DIGIT) {
-                    String value2 = ".";
+                    lexeme.append('.');
                     while (nextClass == CharacterClass.DIGIT) {
-                        value2 += nextChar;
+                        lexeme.append(nextChar);
                         getChar();
                     }
-                    return new Token(TokenType.REAL, value2);
+                    return TokenType.REAL;
                     // Leave as unkknown, could be recognized as a period in the future
                 } else {
                     unread();
-                    return new Token(TokenType.UNKNOWN, ".");
+                    return fixed(TokenType.UNKNOWN, ".");
                 }
             default:
-                return new Token(TokenType.UNKNOWN, String.valueOf(nextChar));
+                lexeme.append(nextChar);
+                return TokenType.UNKNOWN;
+        }
+    }
+
+    /**
+     * Consumes the body of a comment, starting at {@code nextChar}. If the
+     * input ends first the comment is left open so a resumed lexer can
+     * finish it.
+     *
+     * @return the comment type, or the unknown type if the input ended.
+     */
+    private TokenType comment() {
+        commentOpen = true;
+        while (nextClass != CharacterClass.END) {
+            // If ) follows a * consume it, the comment is done
+            if (commentStar && nextChar == ')') {
+                commentOpen = false;
+                commentStar = false;
+                getChar();
+                return fixed(TokenType.COMMENT, "COMMENT");
+            }
+            commentStar = nextChar == '*';
+            getChar();
         }
+
+        // Handle a possible incomplete comment
+        return fixed(TokenType.UNKNOWN, "POSSIBLE INCOMPLETE COMMENT");
     }
 
     /**
@@ -281,12 +437,16 @@ public class Lexer {
             return;
         }
 
-        try {
-            c = input.read();
-        } catch (IOException ioe) {
-            System.err.println("Internal error (getChar()): " + ioe);
-            nextChar = '\0';
-            nextClass = CharacterClass.END;
+        if (text != null) {
+            c = textPos < text.length() ? text.charAt(textPos++) : -1;
+        } else {
+            try {
+                c = input.read();
+            } catch (IOException ioe) {
+                System.err.println("Internal error (getChar()): " + ioe);
+                nextChar = '\0';
+                nextClass = CharacterClass.END;
+            }
         }
 
         if (c == -1) // If there is no character to read, we've reached the end.
@@ -298,14 +458,16 @@ public class Lexer {
 
         // Set the character and determine it's class.
         nextChar = (char) c;
-        if (Character.isLetter(nextChar)) {
-            nextClass = CharacterClass.LETTER;
-        } else if (Character.isDigit(nextChar)) {
-            nextClass = CharacterClass.DIGIT;
-        } else if (Character.isWhitespace(nextChar)) {
-            nextClass = CharacterClass.WHITE_SPACE;
+        nextClass = classify(nextChar);
+
+        // Track the position in bytes so lexing can be resumed. Each half
+        // of a surrogate pair accounts for half of its four bytes.
+        if (c < 0x80) {
+            offset++;
+        } else if (c < 0x800 || Character.isSurrogate(nextChar)) {
+            offset += 2;
         } else {
-            nextClass = CharacterClass.OTHER;
+            offset += 3;
         }
 
         // Update the line counter for error checking.
@@ -314,6 +476,57 @@ public class Lexer {
         }
     }
 
+    /**
+     * Records the fixed value of a token.
+     *
+     * @param type  the type of the token.
+     * @param value the value of the token.
+     * @return the type of the token.
+     */
+    private TokenType fixed(TokenType type, String value) {
+        literal = value;
+        return type;
+    }
+
+    /**
+     * Determines if the lexeme matches a word, ignoring case.
+     *
+     * @param word the word to compare against.
+     * @return true if the lexeme and the word are equal ignoring case.
+     */
+    private boolean lexemeEqualsIgnoreCase(String word) {
+        if (lexeme.length() != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char a = lexeme.charAt(i);
+            char b = word.charAt(i);
+            if (a != b && Character.toUpperCase(a) != Character.toUpperCase(b)
+                    && Character.toLowerCase(a) != Character.toLowerCase(b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines the character class of a character.
+     *
+     * @param ch the character to classify.
+     * @return the class of the character.
+     */
+    private static CharacterClass classify(char ch) {
+        if (Character.isLetter(ch)) {
+            return CharacterClass.LETTER;
+        } else if (Character.isDigit(ch)) {
+            return CharacterClass.DIGIT;
+        } else if (Character.isWhitespace(ch)) {
+            return CharacterClass.WHITE_SPACE;
+        } else {
+            return CharacterClass.OTHER;
+        }
+    }
+
     /**
      * Gets the next non-blank character. This updates potentially both
      * {@code nextChar} and {@code nextClass}.
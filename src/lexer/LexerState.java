@@ -0,0 +1,135 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package lexer;
+
+/**
+ * A saved position of a lexer within a file. The state can be handed to
+ * {@link Lexer#Lexer(java.io.File, LexerState)} to pick up lexing where it
+ * left off.
+ */
+public class LexerState
+{
+    private final long offset; // The number of bytes already read.
+    private final long lineNumber; // The line number at the offset.
+    private final char lookahead; // The character read but not consumed.
+    private final boolean hasLookahead; // Whether lookahead is pending.
+    private final boolean commentOpen; // Whether a comment is open.
+    private final boolean commentStar; // Whether the comment ended in a *.
+
+    /**
+     * Constructs the state at the start of a file.
+     */
+    public LexerState()
+    {
+        this(0, 1, '\0', false, false, false);
+    }
+
+    /**
+     * This is the overloaded constructor it sets every part of the state.
+     *
+     * @param offset       the number of bytes already read.
+     * @param lineNumber   the line number at the offset.
+     * @param lookahead    the character read but not yet consumed.
+     * @param hasLookahead whether the lookahead character is pending.
+     * @param commentOpen  whether the input ended inside a comment.
+     * @param commentStar  whether the open comment ended in a *.
+     */
+    LexerState(long offset, long lineNumber, char lookahead,
+            boolean hasLookahead, boolean commentOpen, boolean commentStar)
+    {
+        this.offset = offset;
+        this.lineNumber = lineNumber;
+        this.lookahead = lookahead;
+        this.hasLookahead = hasLookahead;
+        this.commentOpen = commentOpen;
+        this.commentStar = commentStar;
+    }
+
+    /**
+     * Get the byte offset to resume reading from.
+     *
+     * @return the number of bytes already read.
+     */
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    /**
+     * Get the line number at the offset.
+     *
+     * @return the line number.
+     */
+    public long getLineNumber()
+    {
+        return lineNumber;
+    }
+
+    /**
+     * Get the character that was read but not yet consumed.
+     *
+     * @return the lookahead character.
+     */
+    public char getLookahead()
+    {
+        return lookahead;
+    }
+
+    /**
+     * Determine if a lookahead character is pending.
+     *
+     * @return true if the lookahead character must be consumed first.
+     */
+    public boolean hasLookahead()
+    {
+        return hasLookahead;
+    }
+
+    /**
+     * Determine if the input ended inside a comment.
+     *
+     * @return true if a comment is open.
+     */
+    public boolean isCommentOpen()
+    {
+        return commentOpen;
+    }
+
+    /**
+     * Determine if the open comment ended in a {@code *}, so that a
+     * following {@code )} closes it.
+     *
+     * @return true if the last comment character was a {@code *}.
+     */
+    public boolean isCommentStar()
+    {
+        return commentStar;
+    }
+
+    /**
+     * Return a String representation of the state.
+     *
+     * @return a string representing the state.
+     */
+    @Override
+    public String toString()
+    {
+        return "LexerState(offset=" + offset + ", line=" + lineNumber
+                + ", lookahead=" + (hasLookahead ? "'" + lookahead + "'" : "none")
+                + ", comment=" + (commentOpen ? "open" : "closed") + ")";
+    }
+}
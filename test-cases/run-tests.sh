@@ -0,0 +1,37 @@
+#!/bin/sh
+#
+# Runs every case in test-cases/ against its expected output. The file
+# expected/<name>.expected holds the output of "mfl -f <name>.mfl"; extra
+# options go in the name after a '+', e.g. expected/val+--only+ID,INT.expected
+# holds the output of "mfl -f val.mfl --only ID,INT".
+#
+# Known failures are reported but do not fail the run:
+#   comment  expected/comment.expected ends with a stray blank line and a
+#            "java -jar LexicalAnalysis.jar --file comment.mfl" line that
+#            the interpreter never prints.
+#
+# Usage: test-cases/run-tests.sh [java options to run the interpreter with]
+# The default is "-jar dist/LexicalAnalysis.jar".
+
+cd "$(dirname "$0")/.." || exit 1
+[ $# -eq 0 ] && set -- -jar dist/LexicalAnalysis.jar
+
+known="comment"
+status=0
+for expected in test-cases/expected/*.expected; do
+    name=$(basename "$expected" .expected)
+    source=test-cases/${name%%+*}.mfl
+    flags=
+    case $name in *+*) flags=$(echo "${name#*+}" | tr '+' ' ') ;; esac
+
+    # $flags is split on purpose, one option or argument per word.
+    if java "$@" -f "$source" $flags | diff -q - "$expected" >/dev/null; then
+        echo "PASS $name"
+    else
+        case " $known " in
+        *" $name "*) echo "FAIL $name (known)" ;;
+        *) echo "FAIL $name"; status=1 ;;
+        esac
+    fi
+done
+exit $status
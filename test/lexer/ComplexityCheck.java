@@ -0,0 +1,232 @@
+/*
+ *   Copyright (C) 2022 -- 2023  Zachary A. Kissel
+ *
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package lexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntFunction;
+
+/**
+ * Runs the lexer over pathological inputs of increasing size and checks
+ * that the time per input character stays flat. A lexer that went
+ * quadratic on any of these inputs would see its time per character grow
+ * with the input, so the check exits with a non-zero status and fails the
+ * build. Every run is also held to a deadline, so an input that makes the
+ * lexer hang fails its case by name instead of stalling the build. String
+ * input and file input take different paths through the lexer, so some
+ * cases are also run from a file.
+ */
+public class ComplexityCheck
+{
+    private static final int[] SIZES = { 1 << 18, 1 << 20, 1 << 22 };
+    private static final int TRIALS = 3; // Keep the best of this many runs.
+    private static final double MAX_GROWTH = 4.0; // Allowed ns/char growth.
+    private static final long BUDGET_MS = 5000; // Per run of any input.
+
+    /**
+     * A named generator of pathological inputs.
+     */
+    private static class Case
+    {
+        private final String name; // The name of the case.
+        private final IntFunction<String> input; // Builds an input of a size.
+        private final boolean fromFile; // Whether to lex through a reader.
+
+        private Case(String name, IntFunction<String> input)
+        {
+            this(name, input, false);
+        }
+
+        private Case(String name, IntFunction<String> input, boolean fromFile)
+        {
+            this.name = name;
+            this.input = input;
+            this.fromFile = fromFile;
+        }
+    }
+
+    private static final Case[] CASES = {
+            new Case("long identifier", n -> "a".repeat(n)),
+            new Case("long digit run", n -> "1".repeat(n)),
+            new Case("long real", n -> "1".repeat(n / 2) + "." + "2".repeat(n / 2)),
+            new Case("unterminated comment", n -> "(*" + " x".repeat(n / 2)),
+            new Case("comment of stars", n -> "(*" + "*".repeat(n)),
+            new Case("left parens", n -> "(".repeat(n)),
+            new Case("dots", n -> ".".repeat(n)),
+            new Case("less thans", n -> "<".repeat(n)),
+            new Case("short tokens", n -> "a ".repeat(n / 2)),
+            new Case("long identifier (file)", n -> "a".repeat(n), true),
+            new Case("unterminated comment (file)",
+                    n -> "(*" + " x".repeat(n / 2), true) };
+
+    /**
+     * The entry point.
+     *
+     * @param args the command line arguments, which are ignored.
+     */
+    public static void main(String[] args)
+    {
+        boolean ok = true;
+
+        // Let the JIT settle before anything is measured.
+        for (Case c : CASES)
+            lex(c.input.apply(SIZES[0]), c.fromFile);
+
+        for (Case c : CASES)
+            ok &= check(c);
+
+        // Lexers that missed their deadline may still be running on daemon
+        // threads, so the result is reported through the exit status.
+
+        if (!ok)
+        {
+            System.err.println("lexer complexity check FAILED");
+            System.exit(1);
+        }
+        System.out.println("lexer complexity check passed");
+        System.exit(0);
+    }
+
+    /**
+     * **********
+     * Private Methods **********
+     */
+    /**
+     * Checks a single case at every size.
+     *
+     * @param c the case to check.
+     * @return true if the time per character stayed within bounds.
+     */
+    private static boolean check(Case c)
+    {
+        double[] perChar = new double[SIZES.length];
+        StringBuilder report = new StringBuilder(
+                String.format("%-28s", c.name));
+
+        for (int i = 0; i < SIZES.length; i++)
+        {
+            String input = c.input.apply(SIZES[i]);
+            long best = Long.MAX_VALUE;
+
+            for (int t = 0; t < TRIALS; t++)
+            {
+                long time = lex(input, c.fromFile);
+                if (time < 0)
+                {
+                    report.append(String.format(
+                            "  FAIL: no result within %d ms at %d chars",
+                            BUDGET_MS, input.length()));
+                    System.out.println(report);
+                    return false;
+                }
+                best = Math.min(best, time);
+            }
+
+            perChar[i] = (double) best / input.length();
+            report.append(String.format(" %8.2f ns/char", perChar[i]));
+        }
+
+        double growth = perChar[SIZES.length - 1] / perChar[0];
+        boolean ok = growth <= MAX_GROWTH;
+
+        report.append(String.format("  growth %.2fx  %s", growth,
+                ok ? "ok" : "FAIL"));
+        System.out.println(report);
+        return ok;
+    }
+
+    /**
+     * Lexes an input to the end on a worker thread, giving up once the
+     * budget runs out. The worker is a daemon thread, so a lexer that never
+     * finishes does not keep the check from exiting.
+     *
+     * @param input    the input to lex.
+     * @param fromFile whether to write the input to a file and lex that.
+     * @return the time taken in nanoseconds, or -1 if the lexer failed or
+     *         did not finish in time.
+     */
+    private static long lex(String input, boolean fromFile)
+    {
+        File file = null;
+
+        try
+        {
+            if (fromFile)
+            {
+                file = File.createTempFile("complexity", ".mfl");
+                file.deleteOnExit();
+                Files.writeString(file.toPath(), input);
+            }
+        }
+        catch (IOException ex)
+        {
+            System.err.println(ex);
+            return -1;
+        }
+
+        File source = file;
+        FutureTask<Long> task = new FutureTask<>(() -> time(
+                source == null ? new Lexer(input) : new Lexer(source)));
+        Thread worker = new Thread(task, "complexity-check");
+
+        worker.setDaemon(true);
+        worker.start();
+        try
+        {
+            return task.get(BUDGET_MS, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException ex)
+        {
+            task.cancel(true);
+            return -1;
+        }
+        catch (ExecutionException ex)
+        {
+            System.err.println(ex.getCause());
+            return -1;
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+    /**
+     * Lexes to the end of the input.
+     *
+     * @param lex the lexer to run.
+     * @return the time taken in nanoseconds.
+     */
+    private static long time(Lexer lex)
+    {
+        long start = System.nanoTime();
+
+        Token tok = lex.nextToken();
+        while (tok.getType() != TokenType.EOF)
+            tok = lex.nextToken();
+        long elapsed = System.nanoTime() - start;
+
+        lex.close();
+        return elapsed;
+    }
+}